@@ -2,6 +2,7 @@ package fr.olleroy.ImageModifier;
 
 
 import fr.olleroy.ImageModifier.components.Bitmap;
+import fr.olleroy.ImageModifier.components.PixelBufferPool;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
@@ -11,10 +12,11 @@ import java.net.URL;
 
 /**
  * Represent a bmp file.
+ * Closing the file closes its bitmap, giving back the pixels to their pool if any.
  * @author olleroy alias ollprogram.
  * @version 1.2.0
  */
-public class BMPFile {
+public class BMPFile implements AutoCloseable {
     private Bitmap bitmap; //Bitmap is smaller than BufferedImage
 
     /**
@@ -23,6 +25,16 @@ public class BMPFile {
      * @throws IOException If it can't access or read the File.
      */
     public BMPFile(String imagePathnameOrURL) throws IOException {
+        this(imagePathnameOrURL, null);
+    }
+
+    /**
+     * Construct a BMPFile from a file or a URL, the pixels of the bitmap are taken from a pool.
+     * @param imagePathnameOrURL The pathname or the URL of the image.
+     * @param pool The pool of pixel buffers, <code>null</code> to allocate a new buffer.
+     * @throws IOException If it can't access or read the File.
+     */
+    public BMPFile(String imagePathnameOrURL, PixelBufferPool pool) throws IOException {
         BufferedImage img;
         String absolPathname = "";
         System.out.println("Loading an image...");
@@ -35,7 +47,7 @@ public class BMPFile {
             absolPathname = System.getProperty("user.dir")+"/";
         }
         if(img == null) img = new BufferedImage(0, 0, BufferedImage.TYPE_INT_ARGB);
-        generateBitmapFromImage(img);
+        generateBitmapFromImage(img, pool);
         System.out.println("Image from <"+absolPathname+imagePathnameOrURL+"> successfully loaded");
     }
 
@@ -44,7 +56,16 @@ public class BMPFile {
      * @param bitmap The bitmap for the bmp file.
      */
     public BMPFile(Bitmap bitmap){
-        this.bitmap = new Bitmap(bitmap.getWidth(), bitmap.getHeight());
+        this(bitmap, null);
+    }
+
+    /**
+     * Construct a BMPFile with a new Bitmap built with the specified Bitmap, the pixels are taken from a pool.
+     * @param bitmap The bitmap for the bmp file.
+     * @param pool The pool of pixel buffers, <code>null</code> to allocate a new buffer.
+     */
+    public BMPFile(Bitmap bitmap, PixelBufferPool pool){
+        this.bitmap = new Bitmap(bitmap.getWidth(), bitmap.getHeight(), pool);
         for(int y = 0; y < bitmap.getHeight(); y++){
             for(int x = 0; x < bitmap.getWidth(); x++){
                 this.bitmap.setPixel(x, y, bitmap.getARGB(x, y));
@@ -55,9 +76,10 @@ public class BMPFile {
     /**
      * Generate the bitmap of the file from a BufferedImage.
      * @param img The BufferedImage.
+     * @param pool The pool of pixel buffers, <code>null</code> to allocate a new buffer.
      */
-    private void generateBitmapFromImage(BufferedImage img){
-        this.bitmap = new Bitmap(img.getWidth(), img.getHeight());
+    private void generateBitmapFromImage(BufferedImage img, PixelBufferPool pool){
+        this.bitmap = new Bitmap(img.getWidth(), img.getHeight(), pool);
         for(int y = 0; y < bitmap.getHeight(); y++){
             for(int x = 0; x < bitmap.getWidth(); x++){
                 bitmap.setPixel(x, y, img.getRGB(x, y));
@@ -198,4 +220,13 @@ public class BMPFile {
         return bitmap;
     }
 
+    /**
+     * Close the bitmap of the file, its pixels go back to their pool if any.
+     * @see Bitmap#close()
+     */
+    @Override
+    public void close(){
+        bitmap.close();
+    }
+
 }
@@ -8,13 +8,16 @@ import java.util.Arrays;
  * Bitmap class stores pixels and basic information about the image.
  * Bitmap looks like a BufferedImage but is smaller in memory.
  * BufferedImage could be more efficient to open files faster -> could upgrade to it.
+ * The pixels can come from a {@link PixelBufferPool}, close the bitmap to give them back.
  * @author olleory alias ollprogram.
  * @version 1.2.0
  */
-public class Bitmap {
-    private Pixel [] [] map;//pixel array
+public class Bitmap implements AutoCloseable {
+    private Pixel [] map;//pixel array, row by row (can be longer than width * height when pooled)
     private int width;
     private int height;
+    private PixelBufferPool pool;//pool of the pixel array, null if not pooled
+    private static final int HASH_SAMPLES = 8;//pixels sampled on each axis by hashCode
 
     /**
      * Construct a bitmap with the specified size.
@@ -22,12 +25,27 @@ public class Bitmap {
      * @param height Height of the bitmap image.
      */
     public Bitmap(int width, int height){
+        this(width, height, null);
+    }
+
+    /**
+     * Construct a bitmap with the specified size, its pixels are taken from a pool.
+     * @param width Width of the bitmap image.
+     * @param height Height of the bitmap image.
+     * @param pool The pool of pixel buffers, <code>null</code> to allocate a new buffer.
+     * @throws IllegalArgumentException If the size is negative or too large for an array.
+     */
+    public Bitmap(int width, int height, PixelBufferPool pool){
+        if(width < 0 || height < 0 || (long) width * height > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Invalid bitmap size : "+width+"x"+height);
         this.height = height;
         this.width = width;
-        this.map = new Pixel[height][width];
-        for(int i = 0; i< map.length; i++){
-            for(int j = 0; j < map[i].length; j++){
-                map[i][j] = new Pixel();
+        this.pool = pool;
+        if(pool != null) this.map = pool.acquire(width * height);
+        else {
+            this.map = new Pixel[width * height];
+            for(int i = 0; i < map.length; i++){
+                map[i] = new Pixel();
             }
         }
     }
@@ -36,18 +54,61 @@ public class Bitmap {
      * Replace completely the bitmap.
      * This method allow changing entirely the bitmap without changing
      * the reference of the object (not creating a new object in memory).
+     * If the older bitmap was pooled, its pixels go back to the pool.
+     * The pixels are shared with the specified bitmap, unless it is pooled :
+     * then they are copied into a buffer of the same pool, owned by this bitmap.
      * @param bmp The bitmap which will replace the older bitmap.
      */
     public void change(Bitmap bmp){
-        this.map = bmp.getMap();
+        if(bmp == this) return;
+        close();
         this.width = bmp.getWidth();
         this.height = bmp.getHeight();
+        if(bmp.pool == null){
+            this.map = bmp.getMap();
+            return;
+        }
+        this.pool = bmp.pool;
+        this.map = pool.acquire(width * height);
+        for(int i = 0; i < width * height; i++){
+            map[i].setColor(bmp.getMap()[i].getARGB());
+        }
     }
 
-    private Pixel[][] getMap(){
+    private Pixel[] getMap(){
         return map;
     }
 
+    /**
+     * Give back the pixels to the pool if the bitmap is pooled, the bitmap becomes a 0x0 bitmap.
+     * Pixels got from this bitmap must not be used after, the pool gives them to the next bitmaps.
+     * Nothing happens if the bitmap is not pooled.
+     */
+    @Override
+    public void close(){
+        if(pool == null) return;
+        PixelBufferPool owner = pool;
+        Pixel[] buffer = map;
+        this.pool = null;
+        this.map = new Pixel[0];
+        this.width = 0;
+        this.height = 0;
+        owner.release(buffer);
+    }
+
+    /**
+     * Get the index of a pixel in the pixel array.
+     * @param x X-axis location.
+     * @param y Y-axis location.
+     * @return The index of the pixel.
+     * @throws ArrayIndexOutOfBoundsException If the location is outside the bitmap.
+     */
+    private int index(int x, int y){
+        if(x < 0 || x >= width || y < 0 || y >= height)
+            throw new ArrayIndexOutOfBoundsException("Pixel ("+x+", "+y+") outside a "+width+"x"+height+" bitmap");
+        return y * width + x;
+    }
+
     /**
      * Get a pixel.
      * @param x X-axis location.
@@ -55,8 +116,8 @@ public class Bitmap {
      * @return The pixel at the specified location in the bitmap. Black pixel it's a 0x0 bitmap.
      */
     public Pixel getPixel(int x, int y){
-        if(map.length == 0 || map[0].length == 0) return new Pixel();
-        return map[y][x];
+        if(width == 0 || height == 0) return new Pixel();
+        return map[index(x, y)];
     }
 
     /**
@@ -83,18 +144,19 @@ public class Bitmap {
 
     /**
      * Modify the color of a pixel in the bitmap.
+     * The color is copied, the pixel for replacement isn't kept (it may belong to another bitmap or a pool).
      * @param x X-axis location.
      * @param y Y-axis location.
-     * @param pixel Pixel for replacement.
+     * @param pixel Pixel with the color for replacement.
      */
-    public void setPixel(int x, int y, Pixel pixel){ map[y][x] = pixel; }
+    public void setPixel(int x, int y, Pixel pixel){ map[index(x, y)].setColor(pixel.getARGB()); }
     /**
      * Modify the color of a pixel in the bitmap.
      * @param x X-axis location.
      * @param y Y-axis location.
      * @param color An integer in RGB or ARGB format.
      */
-    public void setPixel(int x, int y, int color){ map[y][x].setColor(color);}
+    public void setPixel(int x, int y, int color){ map[index(x, y)].setColor(color);}
     /**
      * Modify the color of a pixel in the bitmap.
      * @param x X-axis location.
@@ -103,7 +165,7 @@ public class Bitmap {
      * @param g Green color.
      * @param b Blue color.
      */
-    public void setPixel(int x, int y, int r, int g, int b){ map[y][x].setColor(r,g,b);}
+    public void setPixel(int x, int y, int r, int g, int b){ map[index(x, y)].setColor(r,g,b);}
     /**
      * Modify the color of a pixel in the bitmap.
      * @param x X-axis location.
@@ -113,19 +175,56 @@ public class Bitmap {
      * @param g Green color.
      * @param b Blue color.
      */
-    public void setPixel(int x, int y, int a, int r, int g, int b){ map[y][x].setColor(a, r, g, b);}
+    public void setPixel(int x, int y, int a, int r, int g, int b){ map[index(x, y)].setColor(a, r, g, b);}
     /**
      * Modify the color of a pixel in the bitmap.
      * @param x X-axis location.
      * @param y Y-axis location.
      * @param color The color to set.
      */
-    public void setPixel(int x, int y, Color color){map[y][x].setColor(color);}
+    public void setPixel(int x, int y, Color color){map[index(x, y)].setColor(color);}
+
+    /**
+     * Two bitmaps are equal if they have the same size and the same ARGB color for every pixel.
+     * @param o The object to compare.
+     * @return <code>true</code> if the bitmaps are equal.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Bitmap)) return false;
+        Bitmap bitmap = (Bitmap) o;
+        if (width != bitmap.width || height != bitmap.height) return false;
+        for(int y = 0; y < height; y++){
+            for(int x = 0; x < width; x++){
+                if (getARGB(x, y) != bitmap.getARGB(x, y)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hash code built from the size and a grid of at most 8x8 pixels, cheap even for large bitmaps.
+     * Use {@link BitmapHash#contentHash(Bitmap)} for an exact hash of every pixel.
+     * @return The hash code of the bitmap.
+     */
+    @Override
+    public int hashCode() {
+        int hash = width * 31 + height;
+        if (width == 0 || height == 0) return hash;
+        for(int j = 0; j < HASH_SAMPLES; j++){
+            int y = (int) ((long) j * height / HASH_SAMPLES);
+            for(int i = 0; i < HASH_SAMPLES; i++){
+                hash = hash * 31 + getARGB((int) ((long) i * width / HASH_SAMPLES), y);
+            }
+        }
+        return hash;
+    }
 
     @Override
     public String toString() {
         return "Bitmap{" +
-                "map=" + Arrays.toString(map) +
+                "map=" + Arrays.toString(Arrays.copyOf(map, width * height)) +
                 ", width=" + width +
                 ", height=" + height +
                 '}';
@@ -161,6 +260,23 @@ public class Bitmap {
         return img;
     }
 
+    /**
+     * Compute the statistics (histograms, min, max, mean...) of the bitmap.
+     * @return The exact statistics of the bitmap.
+     */
+    public BitmapStatistics getStatistics(){
+        return BitmapStatistics.of(this);
+    }
+
+    /**
+     * Compute approximate statistics of the bitmap, sampling one pixel every <code>stride</code> pixels on both axis.
+     * @param stride The sampling step (1 for exact statistics).
+     * @return The statistics of the sampled pixels.
+     */
+    public BitmapStatistics getStatistics(int stride){
+        return BitmapStatistics.of(this, stride);
+    }
+
     /**
      * Get the size of the bitmap image.
      * @param alpha <code>true</code> for ARGB size, else RGB size.
@@ -0,0 +1,204 @@
+package fr.olleroy.ImageModifier.components;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Hashes of a bitmap, to detect duplicates or use images as keys.
+ * The content hash is an exact 64-bit hash of the ARGB colors.
+ * The perceptual hashes (aHash, dHash, pHash) are computed on a downscaled grayscale copy,
+ * similar images give hashes with a small Hamming distance.
+ * @author olleroy alias ollprogram.
+ * @version 1.2.0
+ */
+public final class BitmapHash {
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final int DCT_SIZE = 32;//pHash downscaled size
+    private static final int HASH_SIZE = 8;//8x8 = 64 bits
+    private static final double[][] DCT_COEFFICIENTS = dctCoefficients();
+
+    private BitmapHash(){
+    }
+
+    /*Exact hash*/
+
+    /**
+     * Compute an exact 64-bit hash of the bitmap content (size and ARGB colors).
+     * Rows are hashed in parallel then combined in order, so the result doesn't depend on the number of threads.
+     * @param bitmap The bitmap.
+     * @return The 64-bit content hash.
+     */
+    public static long contentHash(Bitmap bitmap){
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        long hash = mix(((long) width << 32) | (height & 0xFFFFFFFFL));
+        if(width == 0 || height == 0) return hash;
+        long[] rowHashes = new long[height];
+        IntStream.range(0, height).parallel().forEach(y -> rowHashes[y] = rowHash(bitmap, y));
+        for(long rowHash : rowHashes){
+            hash = mix(hash * PRIME64_1 + rowHash);
+        }
+        return hash;
+    }
+
+    /**
+     * Hash one row of the bitmap.
+     * @param bitmap The bitmap.
+     * @param y Y-axis location of the row.
+     * @return The hash of the row.
+     */
+    private static long rowHash(Bitmap bitmap, int y){
+        long hash = PRIME64_2;
+        int width = bitmap.getWidth();
+        for(int x = 0; x < width; x++){
+            hash = (hash ^ (bitmap.getARGB(x, y) & 0xFFFFFFFFL)) * PRIME64_1;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Final mixer of MurmurHash3, spread every input bit on every output bit.
+     * @param hash The value to mix.
+     * @return The mixed value.
+     */
+    private static long mix(long hash){
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /*Perceptual hashes*/
+
+    /**
+     * Compute the average hash (aHash) : each bit tells if a cell of the 8x8 grayscale copy is brighter than the mean.
+     * @param bitmap The bitmap.
+     * @return The 64-bit average hash.
+     */
+    public static long averageHash(Bitmap bitmap){
+        double[][] gray = downscale(bitmap, HASH_SIZE, HASH_SIZE);
+        double mean = 0;
+        for(double[] row : gray){
+            for(double v : row) mean += v;
+        }
+        mean /= HASH_SIZE * HASH_SIZE;
+        long hash = 0;
+        for(double[] row : gray){
+            for(double v : row){
+                hash = (hash << 1) | (v > mean ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Compute the difference hash (dHash) : each bit tells if a cell of the 9x8 grayscale copy is brighter than its right neighbour.
+     * @param bitmap The bitmap.
+     * @return The 64-bit difference hash.
+     */
+    public static long differenceHash(Bitmap bitmap){
+        double[][] gray = downscale(bitmap, HASH_SIZE + 1, HASH_SIZE);
+        long hash = 0;
+        for(double[] row : gray){
+            for(int x = 0; x < HASH_SIZE; x++){
+                hash = (hash << 1) | (row[x] > row[x + 1] ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Compute the perceptual hash (pHash) : each bit tells if a low frequency of the 32x32 grayscale copy
+     * (8x8 top-left DCT coefficients) is greater than their median.
+     * More robust than aHash and dHash to gamma and contrast changes, but slower.
+     * @param bitmap The bitmap.
+     * @return The 64-bit perceptual hash.
+     */
+    public static long perceptualHash(Bitmap bitmap){
+        double[][] gray = downscale(bitmap, DCT_SIZE, DCT_SIZE);
+        double[][] rows = new double[DCT_SIZE][HASH_SIZE];//DCT on the rows, only the low frequencies
+        for(int y = 0; y < DCT_SIZE; y++){
+            for(int u = 0; u < HASH_SIZE; u++){
+                double sum = 0;
+                for(int x = 0; x < DCT_SIZE; x++) sum += DCT_COEFFICIENTS[u][x] * gray[y][x];
+                rows[y][u] = sum;
+            }
+        }
+        double[] dct = new double[HASH_SIZE * HASH_SIZE];//then on the columns
+        for(int v = 0; v < HASH_SIZE; v++){
+            for(int u = 0; u < HASH_SIZE; u++){
+                double sum = 0;
+                for(int y = 0; y < DCT_SIZE; y++) sum += DCT_COEFFICIENTS[v][y] * rows[y][u];
+                dct[v * HASH_SIZE + u] = sum;
+            }
+        }
+        double[] sorted = new double[dct.length - 1];//without the DC coefficient (mean brightness)
+        System.arraycopy(dct, 1, sorted, 0, sorted.length);
+        Arrays.sort(sorted);
+        double median = sorted[sorted.length / 2];//63 values, the middle one
+        long hash = 0;
+        for(double c : dct){
+            hash = (hash << 1) | (c > median ? 1 : 0);
+        }
+        return hash;
+    }
+
+    /**
+     * Compute the Hamming distance between two hashes.
+     * @param hash1 The first hash.
+     * @param hash2 The second hash.
+     * @return The number of different bits (0 for identical hashes, 64 at most).
+     */
+    public static int hammingDistance(long hash1, long hash2){
+        return Long.bitCount(hash1 ^ hash2);
+    }
+
+    /**
+     * Downscale the bitmap to a grayscale copy, averaging the luminance of the pixels of each cell.
+     * @param bitmap The bitmap.
+     * @param width Width of the copy.
+     * @param height Height of the copy.
+     * @return The luminance of the cells <code>[y][x]</code>, all 0 for an empty bitmap.
+     */
+    private static double[][] downscale(Bitmap bitmap, int width, int height){
+        double[][] gray = new double[height][width];
+        int srcWidth = bitmap.getWidth();
+        int srcHeight = bitmap.getHeight();
+        if(srcWidth == 0 || srcHeight == 0) return gray;
+        for(int j = 0; j < height; j++){
+            int y0 = (int)((long) j * srcHeight / height);
+            int y1 = Math.max(y0 + 1, (int)((long) (j + 1) * srcHeight / height));
+            for(int i = 0; i < width; i++){
+                int x0 = (int)((long) i * srcWidth / width);
+                int x1 = Math.max(x0 + 1, (int)((long) (i + 1) * srcWidth / width));
+                long sum = 0;
+                for(int y = y0; y < y1; y++){
+                    for(int x = x0; x < x1; x++){
+                        int rgb = bitmap.getRGB(x, y);
+                        sum += BitmapStatistics.luminance((rgb >>> 16) & 0xFF, (rgb >>> 8) & 0xFF, rgb & 0xFF);
+                    }
+                }
+                gray[j][i] = (double) sum / ((long) (y1 - y0) * (x1 - x0));
+            }
+        }
+        return gray;
+    }
+
+    /**
+     * Precompute the DCT-II cosines for the low frequencies.
+     * @return The coefficients <code>[frequency][position]</code>.
+     */
+    private static double[][] dctCoefficients(){
+        double[][] c = new double[HASH_SIZE][DCT_SIZE];
+        for(int u = 0; u < HASH_SIZE; u++){
+            double scale = u == 0 ? Math.sqrt(1.0 / DCT_SIZE) : Math.sqrt(2.0 / DCT_SIZE);
+            for(int x = 0; x < DCT_SIZE; x++){
+                c[u][x] = scale * Math.cos((2 * x + 1) * u * Math.PI / (2 * DCT_SIZE));
+            }
+        }
+        return c;
+    }
+}
@@ -0,0 +1,235 @@
+package fr.olleroy.ImageModifier.components;
+
+import java.util.stream.IntStream;
+
+/**
+ * Per-channel and luminance statistics of a bitmap (histograms, min, max, mean, variance).
+ * Everything is computed in one pass over the pixels, in parallel over bands of rows.
+ * Each band fills its own local histograms which are merged at the end (no shared counters).
+ * @author olleroy alias ollprogram.
+ * @version 1.2.0
+ */
+public class BitmapStatistics {
+    /**Alpha channel index.*/
+    public static final int ALPHA = 0;
+    /**Red channel index.*/
+    public static final int RED = 1;
+    /**Green channel index.*/
+    public static final int GREEN = 2;
+    /**Blue channel index.*/
+    public static final int BLUE = 3;
+    /**Luminance index (Rec. 601 weights: 0.299 R + 0.587 G + 0.114 B).*/
+    public static final int LUMINANCE = 4;
+
+    private static final int CHANNELS = 5;
+    private static final int LEVELS = 256;
+    private static final int BANDS_PER_THREAD = 4;//more bands than threads to balance the work
+
+    private final long[][] histograms;//[channel][level]
+    private final long count;//number of sampled pixels
+    private final int stride;
+
+    /**
+     * Construct statistics from merged histograms.
+     * @param histograms The histograms of each channel.
+     * @param stride The sampling stride used.
+     */
+    private BitmapStatistics(long[][] histograms, int stride){
+        this.histograms = histograms;
+        this.stride = stride;
+        long total = 0;
+        for(long n : histograms[ALPHA]) total += n;
+        this.count = total;
+    }
+
+    /**
+     * Compute the exact statistics of a bitmap.
+     * @param bitmap The bitmap.
+     * @return The statistics of every pixel of the bitmap.
+     */
+    public static BitmapStatistics of(Bitmap bitmap){
+        return of(bitmap, 1);
+    }
+
+    /**
+     * Compute the statistics of a bitmap sampling one pixel every <code>stride</code> pixels on both axis.
+     * A stride greater than 1 gives approximate results, faster on huge images.
+     * @param bitmap The bitmap.
+     * @param stride The sampling step on X-axis and Y-axis (1 for exact statistics).
+     * @return The statistics of the sampled pixels.
+     * @throws IllegalArgumentException If the stride is less than 1.
+     */
+    public static BitmapStatistics of(Bitmap bitmap, int stride){
+        if(stride < 1) throw new IllegalArgumentException("stride must be at least 1 : "+stride);
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int rows = height == 0 ? 0 : (height - 1) / stride + 1;//number of sampled rows, no overflow for huge strides
+        if(width == 0 || rows == 0) return new BitmapStatistics(new long[CHANNELS][LEVELS], stride);
+        int bands = Math.min(rows, Runtime.getRuntime().availableProcessors() * BANDS_PER_THREAD);
+        long[][] merged = IntStream.range(0, bands).parallel()
+                .mapToObj(band -> computeBand(bitmap, stride,
+                        (int)((long) rows * band / bands), (int)((long) rows * (band + 1) / bands)))
+                .reduce(BitmapStatistics::merge)
+                .orElseGet(() -> new long[CHANNELS][LEVELS]);
+        return new BitmapStatistics(merged, stride);
+    }
+
+    /**
+     * Fill local histograms for a band of sampled rows.
+     * @param bitmap The bitmap.
+     * @param stride The sampling step.
+     * @param from First sampled row of the band (inclusive).
+     * @param to Last sampled row of the band (exclusive).
+     * @return The histograms of the band.
+     */
+    private static long[][] computeBand(Bitmap bitmap, int stride, int from, int to){
+        long[] a = new long[LEVELS], r = new long[LEVELS], g = new long[LEVELS], b = new long[LEVELS];
+        long[] l = new long[LEVELS];
+        int width = bitmap.getWidth();
+        for(int row = from; row < to; row++){
+            int y = row * stride;
+            for(int x = 0; x < width; x += stride){
+                int argb = bitmap.getPixel(x, y).getARGB();
+                int red = (argb >>> 16) & 0xFF;
+                int green = (argb >>> 8) & 0xFF;
+                int blue = argb & 0xFF;
+                a[argb >>> 24]++;
+                r[red]++;
+                g[green]++;
+                b[blue]++;
+                l[luminance(red, green, blue)]++;
+            }
+        }
+        return new long[][]{a, r, g, b, l};
+    }
+
+    /**
+     * Merge two sets of histograms (the first one is reused).
+     * @param h1 The first histograms.
+     * @param h2 The second histograms.
+     * @return The sum of both histograms.
+     */
+    private static long[][] merge(long[][] h1, long[][] h2){
+        for(int c = 0; c < CHANNELS; c++){
+            for(int i = 0; i < LEVELS; i++){
+                h1[c][i] += h2[c][i];
+            }
+        }
+        return h1;
+    }
+
+    /**
+     * Compute the luminance of a color.
+     * @param r Red color.
+     * @param g Green color.
+     * @param b Blue color.
+     * @return The luminance from 0 to 255.
+     */
+    public static int luminance(int r, int g, int b){
+        return (77 * r + 150 * g + 29 * b + 128) >> 8;//weights scaled by 256
+    }
+
+    /**
+     * Get the histogram of a channel.
+     * @param channel The channel index (ALPHA, RED, GREEN, BLUE or LUMINANCE).
+     * @return A copy of the histogram, 256 elements, each one is the number of sampled pixels of this level.
+     */
+    public long[] getHistogram(int channel){
+        return histograms[channel].clone();
+    }
+
+    /**
+     * Get the minimum level of a channel.
+     * @param channel The channel index.
+     * @return The minimum level, 0 if no pixel was sampled.
+     */
+    public int getMin(int channel){
+        long[] h = histograms[channel];
+        for(int i = 0; i < LEVELS; i++){
+            if(h[i] != 0) return i;
+        }
+        return 0;
+    }
+
+    /**
+     * Get the maximum level of a channel.
+     * @param channel The channel index.
+     * @return The maximum level, 0 if no pixel was sampled.
+     */
+    public int getMax(int channel){
+        long[] h = histograms[channel];
+        for(int i = LEVELS - 1; i >= 0; i--){
+            if(h[i] != 0) return i;
+        }
+        return 0;
+    }
+
+    /**
+     * Get the mean level of a channel.
+     * @param channel The channel index.
+     * @return The mean level, 0 if no pixel was sampled.
+     */
+    public double getMean(int channel){
+        if(count == 0) return 0;
+        long[] h = histograms[channel];
+        long sum = 0;
+        for(int i = 0; i < LEVELS; i++){
+            sum += h[i] * i;
+        }
+        return (double) sum / count;
+    }
+
+    /**
+     * Get the variance of the levels of a channel.
+     * @param channel The channel index.
+     * @return The population variance, 0 if no pixel was sampled.
+     */
+    public double getVariance(int channel){
+        if(count == 0) return 0;
+        long[] h = histograms[channel];
+        double mean = getMean(channel);
+        double sum = 0;
+        for(int i = 0; i < LEVELS; i++){
+            double d = i - mean;
+            sum += h[i] * d * d;
+        }
+        return sum / count;
+    }
+
+    /**
+     * Get the standard deviation of the levels of a channel.
+     * @param channel The channel index.
+     * @return The standard deviation, 0 if no pixel was sampled.
+     */
+    public double getStandardDeviation(int channel){
+        return Math.sqrt(getVariance(channel));
+    }
+
+    /**
+     * Get the number of sampled pixels.
+     * @return The number of pixels used to compute the statistics.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Get the sampling stride.
+     * @return The stride used (1 for exact statistics).
+     */
+    public int getStride() {
+        return stride;
+    }
+
+    @Override
+    public String toString() {
+        return "BitmapStatistics{" +
+                "count=" + count +
+                ", stride=" + stride +
+                ", meanRed=" + getMean(RED) +
+                ", meanGreen=" + getMean(GREEN) +
+                ", meanBlue=" + getMean(BLUE) +
+                ", meanLuminance=" + getMean(LUMINANCE) +
+                '}';
+    }
+}
@@ -1,7 +1,6 @@
 package fr.olleroy.ImageModifier.components;
 
 import java.awt.Color;
-import java.util.Objects;
 /**
  * An RGB or ARGB Pixel (24 bits or 32 bits).
  * @author olleroy alias ollprogram
@@ -86,9 +85,19 @@ public class Pixel {
      * @return An integer of the ARGB color in the classic ARGB format.
      */
     public static int ARGBtoInt(int a, int r, int g, int b){
-        int[] RGB = parseARGB(a, r, g, b);
-        return (RGB[0] << 24) | (RGB[1] << 16) | (RGB[2] << 8) | RGB[3];
-        /*0xRRGGBBAA*/
+        //clamping inline instead of parseARGB to avoid an array allocation per pixel
+        return (clamp(a) << 24) | (clamp(r) << 16) | (clamp(g) << 8) | clamp(b);
+        /*0xAARRGGBB*/
+    }
+
+    /**
+     * Clamp a color component.
+     * @param value The color component.
+     * @return The value restricted from 0 to 255.
+     */
+    private static int clamp(int value){
+        if(value < 0) return 0;
+        return Math.min(value, 255);
     }
 
     /**
@@ -247,6 +256,6 @@ public class Pixel {
 
     @Override
     public int hashCode() {
-        return Objects.hash(red, blue, green, alpha);
+        return ((alpha * 31 + red) * 31 + green) * 31 + blue;//no boxing, unlike Objects.hash
     }
 }
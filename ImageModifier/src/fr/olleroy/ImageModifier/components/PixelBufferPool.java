@@ -0,0 +1,295 @@
+package fr.olleroy.ImageModifier.components;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of pixel buffers for bitmaps, to process many images of similar sizes without allocating
+ * (and collecting) a full pixel store each time.
+ * Buffers are grouped in size classes (powers of two pixels, up to 2^30), larger bitmaps are not pooled.
+ * Each thread keeps its last released buffer for a fast path, the other buffers are shared.
+ * The pool keeps at most <code>maxRetainedBytes</code> of buffers, thread buffers included.
+ * Buffers go back to the pool when the bitmap is closed, see {@link Bitmap#close()}.
+ * A pool should be long-lived (one for the application) or closed when the batch is done,
+ * closing it removes the buffers kept by every thread.
+ * @author olleroy alias ollprogram.
+ * @version 1.2.0
+ */
+public class PixelBufferPool implements AutoCloseable {
+    /**Estimated size of a pixel in a buffer : the Pixel object and its reference (compressed references).*/
+    public static final int BYTES_PER_PIXEL = 36;
+
+    private static final int MAX_SIZE_CLASS = 30;//2^30 pixels, the largest power of two for an array
+
+    private final long maxRetainedBytes;
+    private final List<ConcurrentLinkedDeque<Pixel[]>> buckets;//shared buffers of each size class
+    private final ConcurrentLinkedQueue<Slot> slots = new ConcurrentLinkedQueue<>();//slots of every thread
+    //weak, so the threads don't keep the slots (and their buffers) of a pool that is no longer used
+    private final ThreadLocal<WeakReference<Slot>> local = ThreadLocal.withInitial(() -> new WeakReference<>(newSlot()));
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+
+    /**
+     * The last buffer released by a thread.
+     * Only its thread uses it, except to take its buffer on clear or when the thread is gone.
+     */
+    private static final class Slot {
+        private final WeakReference<Thread> owner = new WeakReference<>(Thread.currentThread());
+        private final AtomicReference<Pixel[]> buffer = new AtomicReference<>();
+
+        private boolean isOrphan(){
+            Thread thread = owner.get();
+            return thread == null || !thread.isAlive();
+        }
+    }
+
+    /**
+     * Construct a pool.
+     * @param maxRetainedBytes The maximum size of the buffers kept by the pool, in bytes (estimated with {@link #BYTES_PER_PIXEL}).
+     * @throws IllegalArgumentException If maxRetainedBytes is negative.
+     */
+    public PixelBufferPool(long maxRetainedBytes){
+        if(maxRetainedBytes < 0) throw new IllegalArgumentException("maxRetainedBytes must be positive : "+maxRetainedBytes);
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.buckets = new ArrayList<>(MAX_SIZE_CLASS + 1);
+        for(int i = 0; i <= MAX_SIZE_CLASS; i++){
+            buckets.add(new ConcurrentLinkedDeque<>());
+        }
+    }
+
+    /**
+     * Create and register the slot of the current thread.
+     * @return The new slot.
+     */
+    private Slot newSlot(){
+        Slot slot = new Slot();
+        slots.add(slot);
+        return slot;
+    }
+
+    /**
+     * Get the slot of the current thread.
+     * @return The slot, registered in the pool.
+     */
+    private Slot localSlot(){
+        Slot slot = local.get().get();
+        if(slot == null){//can't happen while the pool keeps its slots, only for safety
+            slot = newSlot();
+            local.set(new WeakReference<>(slot));
+        }
+        return slot;
+    }
+
+    /**
+     * Get a buffer of black pixels created by the pool.
+     * @param size The number of pixels needed.
+     * @return A buffer of at least <code>size</code> black pixels (the length is a power of two if it can be pooled).
+     * @throws IllegalArgumentException If size is negative.
+     */
+    Pixel[] acquire(int size){
+        if(size < 0) throw new IllegalArgumentException("size must be positive : "+size);
+        if(size == 0) return new Pixel[0];
+        if(size > 1 << MAX_SIZE_CLASS){//too large to be pooled
+            misses.increment();
+            return newBuffer(size, size);
+        }
+        int capacity = 1 << sizeClass(size);
+        Pixel[] buffer = take(localSlot(), capacity);
+        if(buffer == null) buffer = buckets.get(sizeClass(size)).pollFirst();
+        if(buffer == null) buffer = steal(capacity);
+        if(buffer == null){
+            misses.increment();
+            return newBuffer(capacity, size);
+        }
+        retainedBytes.addAndGet(-bytes(buffer));
+        hits.increment();
+        for(int i = 0; i < size; i++){
+            if(buffer[i] == null) buffer[i] = new Pixel();
+            else buffer[i].setColor(0xFF000000);//black pixel
+        }
+        return buffer;
+    }
+
+    /**
+     * Allocate a buffer.
+     * @param capacity The length of the buffer.
+     * @param size The number of pixels to create, the others are created if a larger bitmap reuses the buffer.
+     * @return The new buffer.
+     */
+    private static Pixel[] newBuffer(int capacity, int size){
+        Pixel[] buffer = new Pixel[capacity];
+        for(int i = 0; i < size; i++){
+            buffer[i] = new Pixel();
+        }
+        return buffer;
+    }
+
+    /**
+     * Take the buffer of a slot if it has the right length.
+     * @param slot The slot.
+     * @param capacity The length needed.
+     * @return The buffer, null if the slot is empty or holds another size class.
+     */
+    private static Pixel[] take(Slot slot, int capacity){
+        Pixel[] buffer = slot.buffer.get();
+        if(buffer != null && buffer.length == capacity && slot.buffer.compareAndSet(buffer, null)) return buffer;
+        return null;
+    }
+
+    /**
+     * Take a buffer kept by another thread, and forget the slots of the threads that are gone.
+     * @param capacity The length needed.
+     * @return A buffer, null if no thread keeps a buffer of this length.
+     */
+    private Pixel[] steal(int capacity){
+        for(Slot slot : slots){
+            Pixel[] buffer = take(slot, capacity);
+            if(buffer != null) return buffer;
+            if(slot.isOrphan()) forget(slot);
+        }
+        return null;
+    }
+
+    /**
+     * Unregister a slot of a thread that is gone, its buffer goes to the shared buffers.
+     * @param slot The slot.
+     */
+    private void forget(Slot slot){
+        slots.remove(slot);
+        Pixel[] buffer = slot.buffer.getAndSet(null);
+        if(buffer != null) buckets.get(sizeClass(buffer.length)).offerFirst(buffer);
+    }
+
+    /**
+     * Give back a buffer to the pool, it's discarded if the pool is full.
+     * The thread keeps it for its next bitmap, its previous buffer goes to the shared buffers.
+     * @param buffer A buffer from {@link #acquire(int)}, it must not be used anymore.
+     */
+    void release(Pixel[] buffer){
+        if(buffer.length == 0) return;
+        long bytes = bytes(buffer);
+        if(Integer.bitCount(buffer.length) != 1 || !reserve(bytes)){//not a pooled size or pool full
+            discarded.increment();
+            return;
+        }
+        Pixel[] previous = localSlot().buffer.getAndSet(buffer);
+        if(previous != null) buckets.get(sizeClass(previous.length)).offerFirst(previous);//most recent first, more likely in the CPU cache
+    }
+
+    /**
+     * Count bytes as retained if it doesn't exceed the maximum.
+     * @param bytes The size of a buffer.
+     * @return <code>true</code> if the bytes have been counted.
+     */
+    private boolean reserve(long bytes){
+        long current;
+        do {
+            current = retainedBytes.get();
+            if(current + bytes > maxRetainedBytes) return false;
+        } while(!retainedBytes.compareAndSet(current, current + bytes));
+        return true;
+    }
+
+    /**
+     * Get the size class of a number of pixels.
+     * @param size The number of pixels, from 1 to 2^30.
+     * @return The exponent of the smallest power of two greater or equal to size.
+     */
+    private static int sizeClass(int size){
+        return 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    /**
+     * Get the estimated size of a buffer.
+     * @param buffer The buffer.
+     * @return The size in bytes.
+     */
+    private static long bytes(Pixel[] buffer){
+        return (long) buffer.length * BYTES_PER_PIXEL;
+    }
+
+    /**
+     * Remove every buffer kept by the pool, the buffers kept by the threads included.
+     */
+    public void clear(){
+        for(Slot slot : slots){
+            Pixel[] buffer = slot.buffer.getAndSet(null);
+            if(buffer != null) retainedBytes.addAndGet(-bytes(buffer));
+            if(slot.isOrphan()) slots.remove(slot);
+        }
+        for(ConcurrentLinkedDeque<Pixel[]> bucket : buckets){
+            Pixel[] buffer;
+            while((buffer = bucket.pollFirst()) != null){
+                retainedBytes.addAndGet(-bytes(buffer));
+            }
+        }
+    }
+
+    /**
+     * Remove every buffer kept by the pool, the pool can still be used after.
+     * @see #clear()
+     */
+    @Override
+    public void close(){
+        clear();
+    }
+
+    /**
+     * Get the number of buffers reused from the pool.
+     * @return The number of hits.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of buffers allocated because no buffer was available.
+     * @return The number of misses.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of released buffers not kept because the pool was full.
+     * @return The number of discarded buffers.
+     */
+    public long getDiscarded() {
+        return discarded.sum();
+    }
+
+    /**
+     * Get the size of the buffers kept by the pool, the buffers kept by the threads included.
+     * @return The estimated size in bytes.
+     */
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    /**
+     * Get the maximum size of the buffers kept by the pool.
+     * @return The maximum size in bytes.
+     */
+    public long getMaxRetainedBytes() {
+        return maxRetainedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "PixelBufferPool{" +
+                "hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", discarded=" + getDiscarded() +
+                ", retainedBytes=" + getRetainedBytes() +
+                ", maxRetainedBytes=" + maxRetainedBytes +
+                '}';
+    }
+}
@@ -0,0 +1,76 @@
+import fr.olleroy.ImageModifier.components.Bitmap;
+import fr.olleroy.ImageModifier.components.BitmapHash;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BitmapHash_test {
+
+   /**
+    * A 16x12 grid of pseudo random gray cells, the same image at any size.
+    */
+   private static Bitmap cells(int width, int height){
+      Bitmap bmp = new Bitmap(width, height);
+      for(int y = 0; y < height; y++){
+         for(int x = 0; x < width; x++){
+            int cell = (x * 16 / width) * 31 + (y * 12 / height) * 17;
+            int v = (int) ((cell * 2654435761L >>> 7) & 0xFF);
+            bmp.setPixel(x, y, v, v, v);
+         }
+      }
+      return bmp;
+   }
+
+   @Test
+   public void contentHash(){
+      Bitmap bmp1 = cells(40, 30);
+      Bitmap bmp2 = cells(40, 30);
+      assertEquals(BitmapHash.contentHash(bmp1), BitmapHash.contentHash(bmp2));
+      assertEquals(bmp1, bmp2);
+      assertEquals(bmp1.hashCode(), bmp2.hashCode());
+      bmp2.setPixel(39, 29, 0xFF000000);
+      assertNotEquals(BitmapHash.contentHash(bmp1), BitmapHash.contentHash(bmp2));
+      assertNotEquals(bmp1, bmp2);
+      assertNotEquals(BitmapHash.contentHash(new Bitmap(2, 3)), BitmapHash.contentHash(new Bitmap(3, 2)));
+      assertNotEquals(new Bitmap(2, 3), new Bitmap(3, 2));
+   }
+
+   @Test
+   public void perceptualHashes(){
+      Bitmap bmp1 = cells(64, 48);
+      Bitmap bmp2 = cells(64, 48);
+      bmp2.setPixel(10, 10, 0xFFFFFFFF);//small change
+      Bitmap bmp3 = cells(128, 96);//rescaled
+      assertTrue(BitmapHash.hammingDistance(BitmapHash.averageHash(bmp1), BitmapHash.averageHash(bmp2)) <= 4);
+      assertTrue(BitmapHash.hammingDistance(BitmapHash.differenceHash(bmp1), BitmapHash.differenceHash(bmp2)) <= 4);
+      assertTrue(BitmapHash.hammingDistance(BitmapHash.perceptualHash(bmp1), BitmapHash.perceptualHash(bmp2)) <= 4);
+      assertTrue(BitmapHash.hammingDistance(BitmapHash.averageHash(bmp1), BitmapHash.averageHash(bmp3)) <= 4);
+      assertTrue(BitmapHash.hammingDistance(BitmapHash.differenceHash(bmp1), BitmapHash.differenceHash(bmp3)) <= 4);
+      assertTrue(BitmapHash.hammingDistance(BitmapHash.perceptualHash(bmp1), BitmapHash.perceptualHash(bmp3)) <= 4);
+      assertTrue(BitmapHash.hammingDistance(BitmapHash.perceptualHash(bmp1), BitmapHash.perceptualHash(new Bitmap(64, 48))) > 10);
+   }
+
+   @Test
+   public void hashCodeSamples(){
+      Bitmap bmp1 = cells(3000, 2000);
+      Bitmap bmp2 = cells(3000, 2000);
+      assertEquals(bmp1.hashCode(), bmp2.hashCode());
+      bmp2.setPixel(0, 0, 0x12345678);//sampled pixel
+      assertNotEquals(bmp1.hashCode(), bmp2.hashCode());
+      assertNotEquals(new Bitmap(2, 3).hashCode(), new Bitmap(3, 2).hashCode());
+      assertEquals(new Bitmap(0, 5).hashCode(), new Bitmap(0, 5).hashCode());
+   }
+
+   @Test
+   public void perceptualHashMedian(){
+      long hash = BitmapHash.perceptualHash(cells(64, 48));
+      assertEquals(31, Long.bitCount(hash & Long.MAX_VALUE));//half of the 63 AC coefficients above the median
+   }
+
+   @Test
+   public void hammingDistance(){
+      assertEquals(0, BitmapHash.hammingDistance(0xABCDL, 0xABCDL));
+      assertEquals(64, BitmapHash.hammingDistance(0L, -1L));
+      assertEquals(1, BitmapHash.hammingDistance(0L, 8L));
+   }
+}
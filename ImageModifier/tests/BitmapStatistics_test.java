@@ -0,0 +1,41 @@
+import fr.olleroy.ImageModifier.components.Bitmap;
+import fr.olleroy.ImageModifier.components.BitmapStatistics;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BitmapStatistics_test {
+
+   @Test
+   public void histograms(){
+      Bitmap bmp = new Bitmap(2, 2);
+      bmp.setPixel(0, 0, 255, 255, 0, 0);
+      bmp.setPixel(1, 0, 255, 0, 255, 0);
+      bmp.setPixel(0, 1, 255, 0, 0, 255);
+      bmp.setPixel(1, 1, 0, 255, 255, 255);
+      BitmapStatistics stats = bmp.getStatistics();
+      assertEquals(4, stats.getCount());
+      assertEquals(2, stats.getHistogram(BitmapStatistics.RED)[255]);
+      assertEquals(2, stats.getHistogram(BitmapStatistics.RED)[0]);
+      assertEquals(3, stats.getHistogram(BitmapStatistics.ALPHA)[255]);
+      assertEquals(0, stats.getMin(BitmapStatistics.BLUE));
+      assertEquals(255, stats.getMax(BitmapStatistics.BLUE));
+      assertEquals(127.5, stats.getMean(BitmapStatistics.GREEN), 1e-9);
+      assertEquals(127.5 * 127.5, stats.getVariance(BitmapStatistics.GREEN), 1e-9);
+      assertEquals(255, stats.getMax(BitmapStatistics.LUMINANCE));
+   }
+
+   @Test
+   public void stride(){
+      Bitmap bmp = new Bitmap(5, 3);
+      assertEquals(15, bmp.getStatistics().getCount());
+      assertEquals(6, bmp.getStatistics(2).getCount());
+      assertEquals(1, new Bitmap(4, 10).getStatistics(Integer.MAX_VALUE).getCount());
+      assertEquals(0, new Bitmap(0, 0).getStatistics().getCount());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void invalidStride(){
+      new Bitmap(1, 1).getStatistics(0);
+   }
+}
@@ -0,0 +1,159 @@
+import fr.olleroy.ImageModifier.BMPFile;
+import fr.olleroy.ImageModifier.components.Bitmap;
+import fr.olleroy.ImageModifier.components.Pixel;
+import fr.olleroy.ImageModifier.components.PixelBufferPool;
+import org.junit.Test;
+
+import java.util.concurrent.CyclicBarrier;
+
+import static org.junit.Assert.*;
+
+public class PixelBufferPool_test {
+
+   @Test
+   public void reuse(){
+      PixelBufferPool pool = new PixelBufferPool(1 << 20);
+      Bitmap bmp1 = new Bitmap(30, 20, pool);
+      bmp1.setPixel(3, 4, 0x12345678);
+      Pixel pixel = bmp1.getPixel(3, 4);
+      bmp1.close();
+      assertEquals(0, bmp1.getWidth());
+      assertEquals(1, pool.getMisses());
+      try(Bitmap bmp2 = new Bitmap(28, 20, pool)){//same size class
+         assertEquals(1, pool.getHits());
+         assertEquals(new Bitmap(28, 20), bmp2);//black pixels
+         assertSame(pixel, bmp2.getPixel(11, 4));//same pixel objects
+      }
+      Bitmap bmp3 = new Bitmap(100, 100, pool);//other size class
+      assertEquals(2, pool.getMisses());
+      bmp3.close();
+   }
+
+   @Test
+   public void foreignPixels(){
+      PixelBufferPool pool = new PixelBufferPool(1 << 20);
+      Pixel red = new Pixel(255, 0, 0);
+      Bitmap bmp1 = new Bitmap(2, 1, pool);
+      bmp1.setPixel(0, 0, red);
+      bmp1.setPixel(1, 0, red);//same pixel twice
+      assertEquals(0xFFFF0000, bmp1.getARGB(1, 0));
+      bmp1.close();
+      Bitmap bmp2 = new Bitmap(2, 1, pool);
+      assertEquals(1, pool.getHits());
+      assertEquals(0xFFFF0000, red.getARGB());//not recycled
+      bmp2.setPixel(0, 0, 0xFF00FF00);
+      assertEquals(0xFF000000, bmp2.getARGB(1, 0));//not aliased
+      bmp2.close();
+   }
+
+   @Test
+   public void pooledPixelsInPlainBitmap(){
+      PixelBufferPool pool = new PixelBufferPool(1 << 20);
+      Bitmap plain = new Bitmap(1, 1);
+      Bitmap pooled = new Bitmap(1, 1, pool);
+      pooled.setPixel(0, 0, 0xFFFF0000);
+      plain.setPixel(0, 0, pooled.getPixel(0, 0));//copy idiom
+      pooled.close();
+      try(Bitmap other = new Bitmap(1, 1, pool)){//reuses the pooled pixel
+         assertEquals(1, pool.getHits());
+         other.setPixel(0, 0, 0xFF00FF00);
+         assertEquals(0xFFFF0000, plain.getARGB(0, 0));
+      }
+   }
+
+   @Test
+   public void close(){
+      PixelBufferPool pool = new PixelBufferPool(1 << 20);
+      try(PixelBufferPool p = pool){
+         new Bitmap(8, 8, p).close();
+         assertEquals(64 * PixelBufferPool.BYTES_PER_PIXEL, p.getRetainedBytes());
+      }
+      assertEquals(0, pool.getRetainedBytes());
+   }
+
+   @Test
+   public void change(){
+      PixelBufferPool pool = new PixelBufferPool(1 << 20);
+      Bitmap source = new Bitmap(2, 2, pool);
+      source.setPixel(0, 0, 0xFF00FF00);
+      Bitmap alias = new Bitmap(1, 1);
+      alias.change(source);
+      source.close();
+      try(Bitmap other = new Bitmap(2, 2, pool)){//reuses the source buffer
+         other.setPixel(0, 0, 0xFF0000FF);
+         assertEquals(0xFF00FF00, alias.getARGB(0, 0));
+      }
+      alias.close();
+   }
+
+   @Test
+   public void maxRetainedBytes(){
+      PixelBufferPool pool = new PixelBufferPool(64 * PixelBufferPool.BYTES_PER_PIXEL);
+      Bitmap bmp1 = new Bitmap(8, 8, pool);
+      Bitmap bmp2 = new Bitmap(8, 8, pool);
+      bmp1.close();//thread fast path, counted
+      bmp2.close();//full
+      assertEquals(64 * PixelBufferPool.BYTES_PER_PIXEL, pool.getRetainedBytes());
+      assertEquals(1, pool.getDiscarded());
+      new Bitmap(100, 100, pool).close();//larger than the pool
+      assertEquals(2, pool.getDiscarded());
+      pool.clear();
+      assertEquals(0, pool.getRetainedBytes());
+   }
+
+   @Test
+   public void threads() throws Exception {
+      int threads = 8;
+      PixelBufferPool pool = new PixelBufferPool(2 * 64 * PixelBufferPool.BYTES_PER_PIXEL);
+      CyclicBarrier barrier = new CyclicBarrier(threads);
+      Thread[] workers = new Thread[threads];
+      for(int i = 0; i < threads; i++){
+         workers[i] = new Thread(() -> {
+            Bitmap bmp = new Bitmap(8, 8, pool);
+            try {
+               barrier.await();//every thread holds a buffer
+            } catch (Exception e) {
+               throw new IllegalStateException(e);
+            }
+            bmp.close();
+         });
+         workers[i].start();
+      }
+      for(Thread worker : workers) worker.join();
+      assertEquals(2 * 64 * PixelBufferPool.BYTES_PER_PIXEL, pool.getRetainedBytes());
+      assertEquals(threads - 2, pool.getDiscarded());
+      new Bitmap(8, 8, pool).close();//buffer kept by a thread that is gone
+      assertEquals(1, pool.getHits());
+      pool.clear();
+      assertEquals(0, pool.getRetainedBytes());
+   }
+
+   @Test
+   public void tooLarge(){
+      PixelBufferPool pool = new PixelBufferPool(1 << 20);
+      try {
+         new Bitmap(100000, 100000, pool);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals(0, pool.getMisses());
+      }
+      try {
+         new Bitmap(-1, 10, pool);
+         fail();
+      } catch (IllegalArgumentException e) {
+         assertEquals(0, pool.getMisses());
+      }
+   }
+
+   @Test
+   public void notPooled(){
+      Bitmap bmp = new Bitmap(2, 2);
+      bmp.close();
+      assertEquals(2, bmp.getWidth());
+      PixelBufferPool pool = new PixelBufferPool(1 << 20);
+      try(BMPFile file = new BMPFile(bmp, pool)){
+         assertEquals(bmp, file.getBitmap());
+      }
+      assertEquals(1, pool.getMisses());
+   }
+}
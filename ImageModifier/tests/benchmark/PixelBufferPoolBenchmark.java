@@ -0,0 +1,60 @@
+package benchmark;
+
+import fr.olleroy.ImageModifier.BMPFile;
+import fr.olleroy.ImageModifier.components.Bitmap;
+import fr.olleroy.ImageModifier.components.PixelBufferPool;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Compare the garbage collections of a batch of similar-size images with and without a PixelBufferPool.
+ * Run it with a fixed heap to compare the runs, for example <code>java -Xmx1g benchmark.PixelBufferPoolBenchmark</code>.
+ */
+class PixelBufferPoolBenchmark {
+    private static final int IMAGES = 200;
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+
+    public static void main(String[] args) {
+        run("warm up", null);
+        run("warm up pooled", new PixelBufferPool(256L << 20));
+        run("no pool", null);
+        PixelBufferPool pool = new PixelBufferPool(256L << 20);
+        run("pool", pool);
+        System.out.println(pool);
+    }
+
+    private static void run(String name, PixelBufferPool pool) {
+        System.gc();
+        long[] before = gcStats();
+        long start = System.nanoTime();
+        long checksum = 0;
+        for(int i = 0; i < IMAGES; i++){
+            //one image decoded then copied, like a load-modify-save batch
+            try(Bitmap bmp = new Bitmap(WIDTH, HEIGHT, pool)){
+                for(int y = 0; y < HEIGHT; y++){
+                    for(int x = 0; x < WIDTH; x++){
+                        bmp.setPixel(x, y, 255, x + i, y, i);
+                    }
+                }
+                try(BMPFile copy = new BMPFile(bmp, pool)){
+                    checksum += copy.getBitmap().getARGB(i % WIDTH, i % HEIGHT);
+                }
+            }
+        }
+        long time = (System.nanoTime() - start) / 1_000_000;
+        long[] after = gcStats();
+        System.out.println(name + " : " + time + " ms, " + (after[0] - before[0]) + " collections, "
+                + (after[1] - before[1]) + " ms in GC (checksum " + checksum + ")");
+    }
+
+    private static long[] gcStats() {
+        long count = 0, time = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()){
+            count += Math.max(0, gc.getCollectionCount());
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[]{count, time};
+    }
+}